@@ -0,0 +1,225 @@
+package com.meetme.android.multistateview;
+
+import android.database.DataSetObserver;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+import android.widget.Adapter;
+import android.widget.AdapterView;
+
+/**
+ * Observes the adapter of a {@link MultiStateView}'s content view (an {@link AdapterView} or a RecyclerView) and reports its emptiness on every
+ * data or item-count change, along with whether it switched between being empty and non-empty
+ */
+abstract class ContentAdapterObserver {
+    private static final String RECYCLER_VIEW_CLASS = "android.support.v7.widget.RecyclerView";
+    private static Boolean sHasRecyclerView;
+
+    interface Listener {
+        void onContentDataChanged(boolean isEmpty, boolean emptyChanged);
+    }
+
+    final Listener mListener;
+    private boolean mEmpty;
+
+    ContentAdapterObserver(Listener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Creates an observer for the adapter currently set on the given content view
+     *
+     * @param contentView
+     * @param listener
+     * @return the observer, or null if the content view has no supported adapter
+     */
+    @Nullable
+    static ContentAdapterObserver create(@Nullable View contentView, @NonNull Listener listener) {
+        if (contentView instanceof AdapterView) {
+            Adapter adapter = ((AdapterView<?>) contentView).getAdapter();
+            return adapter != null ? new AdapterViewObserver(adapter, listener) : null;
+        }
+
+        if (contentView != null && hasRecyclerView()) {
+            // Only touch RecyclerView from within this branch; it is an optional dependency
+            return RecyclerViewObserver.create(contentView, listener);
+        }
+
+        return null;
+    }
+
+    /**
+     * @param contentView
+     * @return the adapter currently set on the given content view, or null if it has none or is not a supported view
+     */
+    @Nullable
+    static Object getAdapter(@Nullable View contentView) {
+        if (contentView instanceof AdapterView) {
+            return ((AdapterView<?>) contentView).getAdapter();
+        }
+
+        if (contentView != null && hasRecyclerView()) {
+            return RecyclerViewObserver.getAdapter(contentView);
+        }
+
+        return null;
+    }
+
+    /**
+     * @param observer the current observer, if any
+     * @param contentView
+     * @return whether the given observer is not (or no longer) observing the adapter currently set on the content view
+     */
+    static boolean isStale(@Nullable ContentAdapterObserver observer, @Nullable View contentView) {
+        Object adapter = getAdapter(contentView);
+        return observer != null ? observer.getAdapter() != adapter : adapter != null;
+    }
+
+    private static synchronized boolean hasRecyclerView() {
+        if (sHasRecyclerView == null) {
+            try {
+                Class.forName(RECYCLER_VIEW_CLASS);
+                sHasRecyclerView = true;
+            } catch (ClassNotFoundException e) {
+                sHasRecyclerView = false;
+            }
+        }
+
+        return sHasRecyclerView;
+    }
+
+    /**
+     * Starts observing the adapter, taking its current emptiness as the baseline for change notifications
+     */
+    void register() {
+        mEmpty = isEmpty();
+        registerObserver();
+    }
+
+    void unregister() {
+        unregisterObserver();
+    }
+
+    /**
+     * Notifies the listener of the adapter's current emptiness, and whether it differs from the last observed event
+     *
+     * @param isEmpty
+     */
+    void dispatchEmpty(boolean isEmpty) {
+        boolean changed = isEmpty != mEmpty;
+        mEmpty = isEmpty;
+        mListener.onContentDataChanged(isEmpty, changed);
+    }
+
+    abstract Object getAdapter();
+
+    abstract void registerObserver();
+
+    abstract void unregisterObserver();
+
+    abstract boolean isEmpty();
+
+    private static class AdapterViewObserver extends ContentAdapterObserver {
+        private final Adapter mAdapter;
+
+        private final DataSetObserver mObserver = new DataSetObserver() {
+            @Override
+            public void onChanged() {
+                dispatchEmpty(mAdapter.isEmpty());
+            }
+
+            @Override
+            public void onInvalidated() {
+                dispatchEmpty(true);
+            }
+        };
+
+        AdapterViewObserver(Adapter adapter, Listener listener) {
+            super(listener);
+            mAdapter = adapter;
+        }
+
+        @Override
+        Object getAdapter() {
+            return mAdapter;
+        }
+
+        @Override
+        void registerObserver() {
+            mAdapter.registerDataSetObserver(mObserver);
+        }
+
+        @Override
+        void unregisterObserver() {
+            mAdapter.unregisterDataSetObserver(mObserver);
+        }
+
+        @Override
+        boolean isEmpty() {
+            return mAdapter.isEmpty();
+        }
+    }
+
+    private static class RecyclerViewObserver extends ContentAdapterObserver {
+        private final RecyclerView.Adapter<?> mAdapter;
+
+        private final RecyclerView.AdapterDataObserver mObserver = new RecyclerView.AdapterDataObserver() {
+            @Override
+            public void onChanged() {
+                dispatchEmpty(isEmpty());
+            }
+
+            @Override
+            public void onItemRangeInserted(int positionStart, int itemCount) {
+                // Inserting can only ever make the adapter non-empty; no need to query the count
+                if (itemCount > 0) dispatchEmpty(false);
+            }
+
+            @Override
+            public void onItemRangeRemoved(int positionStart, int itemCount) {
+                if (itemCount > 0) dispatchEmpty(isEmpty());
+            }
+        };
+
+        @Nullable
+        static ContentAdapterObserver create(View contentView, Listener listener) {
+            if (contentView instanceof RecyclerView) {
+                RecyclerView.Adapter<?> adapter = ((RecyclerView) contentView).getAdapter();
+                return adapter != null ? new RecyclerViewObserver(adapter, listener) : null;
+            }
+
+            return null;
+        }
+
+        @Nullable
+        static Object getAdapter(View contentView) {
+            return contentView instanceof RecyclerView ? ((RecyclerView) contentView).getAdapter() : null;
+        }
+
+        private RecyclerViewObserver(RecyclerView.Adapter<?> adapter, Listener listener) {
+            super(listener);
+            mAdapter = adapter;
+        }
+
+        @Override
+        Object getAdapter() {
+            return mAdapter;
+        }
+
+        @Override
+        void registerObserver() {
+            mAdapter.registerAdapterDataObserver(mObserver);
+        }
+
+        @Override
+        void unregisterObserver() {
+            mAdapter.unregisterAdapterDataObserver(mObserver);
+        }
+
+        @Override
+        boolean isEmpty() {
+            return mAdapter.getItemCount() == 0;
+        }
+    }
+}
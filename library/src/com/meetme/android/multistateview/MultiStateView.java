@@ -4,10 +4,16 @@ import android.annotation.TargetApi;
 import android.content.Context;
 import android.content.res.TypedArray;
 import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
 import android.os.Parcel;
 import android.os.Parcelable;
+import android.os.Process;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import android.text.Layout;
+import android.text.StaticLayout;
+import android.text.TextPaint;
 import android.util.AttributeSet;
 import android.util.Log;
 import android.util.SparseArray;
@@ -16,6 +22,10 @@ import android.widget.FrameLayout;
 import android.widget.TextView;
 
 import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * A view designed to wrap a single child (the "content") and hide/show that content based on the current "state" (see {@link ContentState}) of this
@@ -24,14 +34,58 @@ import java.util.Locale;
 @SuppressWarnings("NullableProblems")
 public class MultiStateView extends FrameLayout {
     private static final String TAG = "MultiStateView";
+    private static Executor sTextPrecomputeExecutor;
     private final MultiStateViewData mViewState = new MultiStateViewData(ContentState.CONTENT);
 
     private View mContentView;
     private View mLoadingView;
     private View mNetworkErrorView;
     private View mGeneralErrorView;
+    private View mEmptyView;
     private OnClickListener mTapToRetryClickListener;
 
+    /** Incremented whenever the error title or state changes, so that stale async text results can be discarded */
+    private int mErrorTextGeneration;
+    /** Whether an async error title is being precomputed and has yet to be applied */
+    private boolean mErrorTextPending;
+
+    private boolean mAutoEmptyState;
+    private ContentAdapterObserver mAdapterObserver;
+
+    private final ContentAdapterObserver.Listener mAdapterListener = new ContentAdapterObserver.Listener() {
+        @Override
+        public void onContentDataChanged(boolean isEmpty, boolean emptyChanged) {
+            if (ContentAdapterObserver.isStale(mAdapterObserver, mContentView)) {
+                // The content view's adapter was replaced; observe the new one instead
+                bindContentAdapter();
+                return;
+            }
+
+            switch (getState()) {
+                case LOADING:
+                    // Any data change ends loading, even if the adapter is as empty (or non-empty) as before
+                    setState(isEmpty ? ContentState.EMPTY : ContentState.CONTENT);
+                    break;
+
+                case CONTENT:
+                case EMPTY:
+                    if (emptyChanged) setState(isEmpty ? ContentState.EMPTY : ContentState.CONTENT);
+                    break;
+
+                default:
+                    // Data changes never replace an error the developer is showing
+                    break;
+            }
+        }
+    };
+
+    private final Runnable mBindContentAdapter = new Runnable() {
+        @Override
+        public void run() {
+            bindContentAdapter();
+        }
+    };
+
     public MultiStateView(Context context) {
         this(context, null);
     }
@@ -68,6 +122,8 @@ public class MultiStateView extends FrameLayout {
             setLoadingLayoutResourceId(a.getResourceId(R.styleable.MultiStateView_msvLoadingLayout, R.layout.msv__loading));
             setGeneralErrorLayoutResourceId(a.getResourceId(R.styleable.MultiStateView_msvErrorUnknownLayout, R.layout.msv__error_unknown));
             setNetworkErrorLayoutResourceId(a.getResourceId(R.styleable.MultiStateView_msvErrorNetworkLayout, R.layout.msv__error_network));
+            setEmptyLayoutResourceId(a.getResourceId(R.styleable.MultiStateView_msvEmptyLayout, R.layout.msv__empty));
+            setAutoEmptyStateEnabled(a.getBoolean(R.styleable.MultiStateView_msvAutoEmptyState, false));
 
             String tmpString;
 
@@ -122,6 +178,7 @@ public class MultiStateView extends FrameLayout {
     }
 
     public void setCustomErrorString(String string) {
+        discardPendingErrorText();
         mViewState.customErrorString = string;
 
         if (mGeneralErrorView != null) {
@@ -133,6 +190,141 @@ public class MultiStateView extends FrameLayout {
         }
     }
 
+    /**
+     * Same as {@link #setCustomErrorString(String)}, but measures and lays out the text on a shared background executor first, then applies it on
+     * the next animation frame. The result is discarded if the error text changes, or the state changes to anything but
+     * {@link ContentState#ERROR_GENERAL}, in the meantime. A call to {@link #setState(ContentState)} with {@link ContentState#ERROR_GENERAL} while
+     * the text is pending keeps the pending text instead of resetting the title.
+     * <p>
+     * This is a best-effort optimization, not a true precompute: the background layout is not handed to the title view, which still measures and
+     * lays out the text on the UI thread. The background pass only warms the platform's text measurement cache, so it is only done on Lollipop and
+     * up; on older versions the text is simply applied on the next frame.
+     *
+     * @param string
+     * @see #setCustomErrorStringAsync(String, Executor)
+     */
+    public void setCustomErrorStringAsync(String string) {
+        setCustomErrorStringAsync(string, getTextPrecomputeExecutor());
+    }
+
+    /**
+     * Same as {@link #setCustomErrorStringAsync(String)}, but performs the text measurement on the given {@link Executor}
+     *
+     * @param string
+     * @param executor
+     */
+    public void setCustomErrorStringAsync(final String string, @NonNull Executor executor) {
+        if (string == null) {
+            // Nothing to measure; behave like the synchronous variant
+            setCustomErrorString(string);
+            return;
+        }
+
+        // Inflate the error view now so the pending text survives a following setState(ERROR_GENERAL) the same way every time
+        final boolean justInflated = mGeneralErrorView == null;
+        final TextView view = (TextView) getGeneralErrorView().findViewById(R.id.error_title);
+
+        if (justInflated && getState() != ContentState.ERROR_GENERAL) {
+            mGeneralErrorView.setVisibility(View.GONE);
+        }
+
+        if (view == null) {
+            setCustomErrorString(string);
+            return;
+        }
+
+        final int generation = ++mErrorTextGeneration;
+        mErrorTextPending = true;
+        mViewState.customErrorString = string;
+
+        // Snapshot the text params on the UI thread; the background thread must not touch the view itself
+        final TextPaint paint = new TextPaint(view.getPaint());
+        int width = view.getWidth() - view.getCompoundPaddingLeft() - view.getCompoundPaddingRight();
+        final int layoutWidth = width > 0 ? width : getResources().getDisplayMetrics().widthPixels;
+        // Posting to a View from a worker thread is lost while detached (prior to API 24), so hop back through the main looper first
+        final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+        final Runnable applyText = new Runnable() {
+            @Override
+            public void run() {
+                if (generation != mErrorTextGeneration) {
+                    if (BuildConfig.DEBUG) Log.v(TAG, "Discarding stale precomputed error text");
+                    return;
+                }
+
+                mErrorTextPending = false;
+                view.setText(string);
+            }
+        };
+
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+            // No word measurement cache to warm; measuring in the background would only do the work twice
+            postOnNextFrame(applyText);
+            return;
+        }
+
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        // Building the layout measures each word, which warms the text measurement cache
+                        new StaticLayout(string, paint, layoutWidth, Layout.Alignment.ALIGN_NORMAL, 1f, 0f, true);
+                    } finally {
+                        // Always apply the text, even if measuring failed, so the pending flag is cleared
+                        mainHandler.post(new Runnable() {
+                            @Override
+                            public void run() {
+                                postOnNextFrame(applyText);
+                            }
+                        });
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            Log.w(TAG, "Error text precompute rejected; applying synchronously", e);
+            setCustomErrorString(string);
+        }
+    }
+
+    private void discardPendingErrorText() {
+        mErrorTextGeneration++;
+        mErrorTextPending = false;
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private void postOnNextFrame(Runnable action) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            postOnAnimation(action);
+        } else {
+            post(action);
+        }
+    }
+
+    /**
+     * @return the shared, lazily created background {@link Executor} used by {@link #setCustomErrorStringAsync(String)}
+     */
+    private static synchronized Executor getTextPrecomputeExecutor() {
+        if (sTextPrecomputeExecutor == null) {
+            sTextPrecomputeExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable r) {
+                    Thread thread = new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                            r.run();
+                        }
+                    }, "MultiStateView-text");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+
+        return sTextPrecomputeExecutor;
+    }
+
     public String getGeneralErrorTitleString() {
         return mViewState.generalErrorTitleString;
     }
@@ -153,6 +345,106 @@ public class MultiStateView extends FrameLayout {
         this.mViewState.loadingLayoutResId = loadingLayout;
     }
 
+    public int getEmptyLayoutResourceId() {
+        return mViewState.emptyLayoutResId;
+    }
+
+    public void setEmptyLayoutResourceId(int emptyLayout) {
+        this.mViewState.emptyLayoutResId = emptyLayout;
+    }
+
+    /**
+     * @return whether the view switches between {@link ContentState#CONTENT} and {@link ContentState#EMPTY} on its own by observing the adapter of
+     * the content view
+     */
+    public boolean isAutoEmptyStateEnabled() {
+        return mAutoEmptyState;
+    }
+
+    /**
+     * Enables or disables automatic switching between {@link ContentState#CONTENT} and {@link ContentState#EMPTY}. When enabled, a data observer is
+     * registered on the adapter of the content view (an {@link android.widget.AdapterView} or a RecyclerView) while this view is attached to a
+     * window. Whenever the adapter switches between empty and non-empty, the state switches accordingly; from {@link ContentState#LOADING}, any
+     * data change resolves to either. Error states are left alone, and {@link #setState(ContentState)} with {@link ContentState#CONTENT} shows
+     * {@link ContentState#EMPTY} instead while the adapter is empty. Disabling while in {@link ContentState#EMPTY} returns to {@link ContentState#CONTENT}.
+     *
+     * @param enabled
+     * @see #notifyContentAdapterChanged()
+     */
+    public void setAutoEmptyStateEnabled(boolean enabled) {
+        mAutoEmptyState = enabled;
+        bindContentAdapter();
+
+        if (!enabled && getState() == ContentState.EMPTY) {
+            setState(ContentState.CONTENT);
+        }
+    }
+
+    /**
+     * Immediately observes the current adapter of the content view. A replaced adapter is otherwise picked up on the next layout pass.
+     *
+     * @see #setAutoEmptyStateEnabled(boolean)
+     */
+    public void notifyContentAdapterChanged() {
+        bindContentAdapter();
+    }
+
+    /**
+     * (Re-)registers the adapter observer for the current content view, if enabled and attached
+     */
+    private void bindContentAdapter() {
+        removeCallbacks(mBindContentAdapter);
+        unbindContentAdapter();
+
+        if (!mAutoEmptyState || getWindowToken() == null) {
+            return;
+        }
+
+        mAdapterObserver = ContentAdapterObserver.create(mContentView, mAdapterListener);
+
+        if (mAdapterObserver != null) {
+            mAdapterObserver.register();
+
+            // Don't override a loading or error state set by the developer
+            ContentState state = getState();
+
+            if (state == ContentState.CONTENT || state == ContentState.EMPTY) {
+                setState(mAdapterObserver.isEmpty() ? ContentState.EMPTY : ContentState.CONTENT);
+            }
+        }
+    }
+
+    private void unbindContentAdapter() {
+        if (mAdapterObserver != null) {
+            mAdapterObserver.unregister();
+            mAdapterObserver = null;
+        }
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        bindContentAdapter();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        removeCallbacks(mBindContentAdapter);
+        unbindContentAdapter();
+        super.onDetachedFromWindow();
+    }
+
+    @Override
+    protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
+        super.onLayout(changed, left, top, right, bottom);
+
+        // Setting an adapter requests a layout, so this is where a replaced adapter is noticed. Rebinding may inflate the empty view, so defer it
+        if (mAutoEmptyState && ContentAdapterObserver.isStale(mAdapterObserver, mContentView)) {
+            removeCallbacks(mBindContentAdapter);
+            post(mBindContentAdapter);
+        }
+    }
+
     /**
      * @return the {@link ContentState} the view is currently in
      */
@@ -174,11 +466,17 @@ public class MultiStateView extends FrameLayout {
     }
 
     /**
-     * Configures the view to be in the given state, hiding and showing internally maintained-views as needed
+     * Configures the view to be in the given state, hiding and showing internally maintained-views as needed. While automatic empty state is
+     * enabled and the content adapter is empty, {@link ContentState#CONTENT} shows {@link ContentState#EMPTY} instead.
      *
      * @param state
+     * @see #setAutoEmptyStateEnabled(boolean)
      */
-    public void setState(final ContentState state) {
+    public void setState(ContentState state) {
+        if (state == ContentState.CONTENT && mAdapterObserver != null && mAdapterObserver.isEmpty()) {
+            state = ContentState.EMPTY;
+        }
+
         if (state == mViewState.state) {
             if (BuildConfig.DEBUG) Log.v(TAG, "Already in state " + mViewState.state);
             // No change
@@ -192,6 +490,11 @@ public class MultiStateView extends FrameLayout {
             return;
         }
 
+        if (state != ContentState.ERROR_GENERAL) {
+            // Any pending async error text was meant for the general error state
+            discardPendingErrorText();
+        }
+
         // Hide the previous state view
         final ContentState previousState = mViewState.state;
         View previousView = getStateView(previousState);
@@ -208,7 +511,8 @@ public class MultiStateView extends FrameLayout {
             if (state == ContentState.ERROR_GENERAL) {
                 TextView view = ((TextView) newStateView.findViewById(R.id.error_title));
 
-                if (view != null) {
+                // A pending async custom error text takes precedence over the default title
+                if (view != null && !mErrorTextPending) {
                     view.setText(getGeneralErrorTitleString());
                 }
             }
@@ -257,6 +561,8 @@ public class MultiStateView extends FrameLayout {
                 state = ContentState.ERROR_NETWORK;
             } else if (child == mLoadingView) {
                 state = ContentState.LOADING;
+            } else if (child == mEmptyView) {
+                state = ContentState.EMPTY;
             }
 
             Log.v(TAG, String.format(Locale.US, "| - #%d: %s (%s) -> %s",
@@ -286,6 +592,9 @@ public class MultiStateView extends FrameLayout {
             case LOADING:
                 return getLoadingView();
 
+            case EMPTY:
+                return getEmptyView();
+
             case CONTENT:
                 return getContentView();
         }
@@ -349,6 +658,20 @@ public class MultiStateView extends FrameLayout {
         return mLoadingView;
     }
 
+    /**
+     * Builds the empty view if not currently built, and returns the view
+     */
+    @NonNull
+    public View getEmptyView() {
+        if (mEmptyView == null) {
+            mEmptyView = View.inflate(getContext(), mViewState.emptyLayoutResId, null);
+
+            addView(mEmptyView);
+        }
+
+        return mEmptyView;
+    }
+
     public void setOnTapToRetryClickListener(View.OnClickListener listener) {
         mTapToRetryClickListener = listener;
 
@@ -393,10 +716,11 @@ public class MultiStateView extends FrameLayout {
         mContentView = contentView;
 
         setState(mViewState.state);
+        bindContentAdapter();
     }
 
     private boolean isViewInternal(View view) {
-        return view == mNetworkErrorView || view == mGeneralErrorView || view == mLoadingView;
+        return view == mNetworkErrorView || view == mGeneralErrorView || view == mLoadingView || view == mEmptyView;
     }
 
     @Override
@@ -428,6 +752,7 @@ public class MultiStateView extends FrameLayout {
         setGeneralErrorLayoutResourceId(state.generalErrorLayoutResId);
         setNetworkErrorLayoutResourceId(state.networkErrorLayoutResId);
         setLoadingLayoutResourceId(state.loadingLayoutResId);
+        setEmptyLayoutResourceId(state.emptyLayoutResId);
         setCustomErrorString(state.customErrorString);
     }
 
@@ -503,7 +828,14 @@ public class MultiStateView extends FrameLayout {
          *
          * @see R.attr#msvState
          */
-        ERROR_GENERAL(0x03);
+        ERROR_GENERAL(0x03),
+        /**
+         * Used to indicate that the content has no items, and the Empty indication should be displayed to the user
+         *
+         * @see R.attr#msvState
+         * @see R.attr#msvAutoEmptyState
+         */
+        EMPTY(0x04);
 
         public final int nativeInt;
         private static final SparseArray<ContentState> sStates = new SparseArray<ContentState>();
@@ -559,6 +891,7 @@ public class MultiStateView extends FrameLayout {
     public static class MultiStateViewData implements Parcelable {
         public String customErrorString;
         public int loadingLayoutResId;
+        public int emptyLayoutResId;
         public int generalErrorLayoutResId;
         public int networkErrorLayoutResId;
         public String networkErrorTitleString;
@@ -573,6 +906,7 @@ public class MultiStateView extends FrameLayout {
         private MultiStateViewData(Parcel in) {
             customErrorString = in.readString();
             loadingLayoutResId = in.readInt();
+            emptyLayoutResId = in.readInt();
             generalErrorLayoutResId = in.readInt();
             networkErrorLayoutResId = in.readInt();
             networkErrorTitleString = in.readString();
@@ -588,6 +922,7 @@ public class MultiStateView extends FrameLayout {
         public void writeToParcel(Parcel dest, int flags) {
             dest.writeString(customErrorString);
             dest.writeInt(loadingLayoutResId);
+            dest.writeInt(emptyLayoutResId);
             dest.writeInt(generalErrorLayoutResId);
             dest.writeInt(networkErrorLayoutResId);
             dest.writeString(networkErrorTitleString);